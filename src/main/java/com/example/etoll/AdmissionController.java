@@ -0,0 +1,211 @@
+package com.example.etoll;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+
+import javax.management.ObjectName;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * AdmissionController - memory budget for concurrent generateVoucher calls.
+ *
+ * - Estimates a job's heap cost from file size and the sheet's <dimension ref>
+ *   of the first sheet (scanned from the package, before any cell is parsed)
+ * - Admits jobs FIFO while in-flight bytes stay within the budget
+ * - Jobs too big for a DOM parse go to the streaming path (or queue alone)
+ * - In-flight bytes etc. exposed over JMX as com.example.etoll:type=AdmissionController
+ */
+public class AdmissionController implements AdmissionControllerMBean {
+
+    // ---------------- CONFIG (system properties) ----------------
+    // heap budget: explicit MB, else a fraction of -Xmx
+    private static final long BUDGET_MB = Long.getLong("etoll.admission.budgetMb", 0);
+    private static final double BUDGET_FRACTION = Double.parseDouble(System.getProperty("etoll.admission.heapFraction", "0.6"));
+    // "stream" = oversize files use the SAX reader, "queue" = run them alone on the DOM reader
+    private static final String OVERSIZE_POLICY = System.getProperty("etoll.admission.oversize", "stream");
+
+    // cost model: XSSF DOM cell + List<Map> copy per cell; SAX keeps only the used columns per row
+    private static final long DOM_BYTES_PER_CELL = Long.getLong("etoll.admission.domBytesPerCell", 1_600);
+    private static final long STREAM_BYTES_PER_ROW = Long.getLong("etoll.admission.streamBytesPerRow", 1_200);
+    private static final long FILE_FACTOR = 3;   // zip buffers + shared strings vs. file size
+
+    private static final Pattern DIMENSION = Pattern.compile("<dimension\\s+ref=\"([A-Z]+)(\\d+)(?::([A-Z]+)(\\d+))?\"");
+    private static final int DIMENSION_SCAN_CHARS = 64 * 1024;
+
+    private static AdmissionController instance;
+
+    private final long budget;
+    private final boolean streamOversize;
+    private long inFlight = 0;
+    private long peak = 0;
+    private long nextTurn = 0;
+    private long serving = 0;
+    private final Set<Long> abandoned = new HashSet<>();
+    private int running = 0;
+    private long admitted = 0;
+    private long streamed = 0;
+
+    AdmissionController(long budget) {
+        this(budget, "stream".equalsIgnoreCase(OVERSIZE_POLICY));
+    }
+
+    AdmissionController(long budget, boolean streamOversize) {
+        this.budget = budget;
+        this.streamOversize = streamOversize;
+    }
+
+    public static synchronized AdmissionController get() {
+        if (instance == null) {
+            long budget = BUDGET_MB > 0 ? BUDGET_MB * 1024 * 1024
+                    : (long) (Runtime.getRuntime().maxMemory() * BUDGET_FRACTION);
+            instance = new AdmissionController(budget);
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance,
+                        new ObjectName("com.example.etoll:type=AdmissionController"));
+            } catch (Exception e) {
+                System.out.println("[Admission] JMX registration failed: " + e.getMessage());
+            }
+        }
+        return instance;
+    }
+
+    /** Blocks until the job fits the budget; close the ticket when the job is done. */
+    public Ticket admit(Path dsrPath) throws IOException, InterruptedException {
+        Estimate e = estimate(dsrPath);
+        boolean streaming = e.domBytes > budget && streamOversize;
+        long cost = streaming ? e.streamBytes : e.domBytes;
+
+        synchronized (this) {
+            long turn = nextTurn++;
+            // FIFO so a big job is not starved by small ones; a job larger than
+            // the whole budget still runs once nothing else is in flight
+            try {
+                while (turn != serving || (running > 0 && inFlight + cost > budget)) wait();
+            } catch (InterruptedException ie) {
+                // give up the turn, otherwise every later job waits on it forever
+                if (turn == serving) advance();
+                else abandoned.add(turn);
+                notifyAll();
+                throw ie;
+            }
+            advance();
+            running++;
+            inFlight += cost;
+            peak = Math.max(peak, inFlight);
+            admitted++;
+            if (streaming) streamed++;
+            notifyAll();
+        }
+
+        System.out.println("[Admission] " + dsrPath.getFileName() + " rows=" + e.rows + " cols=" + e.cols
+                + " cost=" + mb(cost) + "MB (" + (streaming ? "stream" : "dom") + "), in-flight "
+                + mb(getInFlightBytes()) + "/" + mb(budget) + "MB");
+        return new Ticket(cost, streaming);
+    }
+
+    // next turn, skipping waiters that were interrupted before reaching the head
+    private void advance() {
+        serving++;
+        while (abandoned.remove(serving)) serving++;
+    }
+
+    private synchronized void release(long cost) {
+        inFlight -= cost;
+        running--;
+        notifyAll();
+    }
+
+    // ---------------- estimate ----------------
+    static Estimate estimate(Path xlsx) throws IOException {
+        long fileSize = Files.size(xlsx);
+        long rows = 0, cols = 0, sheetXmlSize = -1;
+
+        // first sheet in workbook order - the one both readers parse - whatever its part name
+        try (OPCPackage pkg = OPCPackage.open(xlsx.toFile(), PackageAccess.READ)) {
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) new XSSFReader(pkg).getSheetsData();
+            if (sheets.hasNext()) {
+                try (BufferedReader r = new BufferedReader(new InputStreamReader(sheets.next(), StandardCharsets.UTF_8))) {
+                    sheetXmlSize = sheets.getSheetPart().getSize();
+                    char[] buf = new char[DIMENSION_SCAN_CHARS];
+                    int n = r.read(buf, 0, buf.length);
+                    Matcher m = DIMENSION.matcher(n > 0 ? new String(buf, 0, n) : "");
+                    if (m.find()) {
+                        rows = m.group(4) != null ? Long.parseLong(m.group(4)) - Long.parseLong(m.group(2)) + 1 : 1;
+                        cols = m.group(3) != null ? columnIndex(m.group(3)) - columnIndex(m.group(1)) + 1 : 1;
+                    }
+                }
+            }
+        } catch (OpenXML4JException e) {
+            throw new IOException("Not a readable xlsx: " + xlsx, e);
+        }
+
+        // no usable <dimension>: roughly 40 bytes of sheet XML per cell, 30 columns wide
+        if (rows * cols <= 1) {
+            long xml = sheetXmlSize > 0 ? sheetXmlSize : fileSize * 10;
+            cols = 30;
+            rows = Math.max(1, xml / 40 / cols);
+        }
+
+        long domBytes = rows * cols * DOM_BYTES_PER_CELL + fileSize * FILE_FACTOR;
+        long streamBytes = rows * STREAM_BYTES_PER_ROW + fileSize * FILE_FACTOR;
+        return new Estimate(rows, cols, domBytes, streamBytes);
+    }
+
+    private static long columnIndex(String letters) {
+        long idx = 0;
+        for (char c : letters.toCharArray()) idx = idx * 26 + (c - 'A' + 1);
+        return idx;
+    }
+
+    private static long mb(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    // ---------------- JMX ----------------
+    @Override public synchronized long getInFlightBytes() { return inFlight; }
+    @Override public synchronized long getPeakInFlightBytes() { return peak; }
+    @Override public long getBudgetBytes() { return budget; }
+    @Override public synchronized int getRunningJobs() { return running; }
+    @Override public synchronized long getQueuedJobs() { return nextTurn - serving - abandoned.size(); }
+    @Override public synchronized long getAdmittedJobs() { return admitted; }
+    @Override public synchronized long getStreamedJobs() { return streamed; }
+
+    // ---------- inner classes ----------
+    static class Estimate {
+        final long rows;
+        final long cols;
+        final long domBytes;
+        final long streamBytes;
+        Estimate(long r, long c, long d, long s) { rows=r; cols=c; domBytes=d; streamBytes=s; }
+    }
+
+    public class Ticket implements AutoCloseable {
+        private final long cost;
+        private final boolean streaming;
+        private boolean closed = false;
+
+        private Ticket(long cost, boolean streaming) { this.cost = cost; this.streaming = streaming; }
+
+        /** true when the job must use the low-memory streaming reader */
+        public boolean streaming() { return streaming; }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            release(cost);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.etoll;
+
+/**
+ * JMX view of AdmissionController (jconsole: com.example.etoll / AdmissionController).
+ */
+public interface AdmissionControllerMBean {
+    long getInFlightBytes();
+    long getPeakInFlightBytes();
+    long getBudgetBytes();
+    int getRunningJobs();
+    long getQueuedJobs();
+    long getAdmittedJobs();
+    long getStreamedJobs();
+}
@@ -1,21 +1,36 @@
 package com.example.etoll;
 
+import java.util.Arrays;
+
 public class AppMain {
+
+    // iterations of the synthetic voucher run before consuming (--warmup)
+    private static final int WARMUP_ITERATIONS = Integer.getInteger("etoll.warmup.iterations", 3);
+
     public static void main(String[] args) throws Exception {
 
         String cmd = args.length > 0 ? args[0].toLowerCase() : "all";
+        boolean warmup = Arrays.asList(args).contains("--warmup");
 
         switch (cmd) {
+            case "warmup":
+                // training run for the AppCDS archive (see pom.xml) - exits when done
+                VoucherWarmUp.run(WARMUP_ITERATIONS);
+                break;
+
             case "producer":
                 FileWatcherProducer.main(new String[]{});
                 break;
 
             case "consumer":
+                if (warmup) VoucherWarmUp.run(WARMUP_ITERATIONS);
                 DsrConsumer.main(new String[]{});
                 break;
 
             case "all":
             default:
+                if (warmup) VoucherWarmUp.run(WARMUP_ITERATIONS);
+
                 Thread t = new Thread(() -> {
                     try { DsrConsumer.main(new String[]{}); }
                     catch (Exception e) { e.printStackTrace(); }
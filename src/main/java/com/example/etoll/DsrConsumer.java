@@ -3,62 +3,122 @@ package com.example.etoll;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
 
+import java.lang.management.ManagementFactory;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DsrConsumer {
 
     private static final ObjectMapper mapper = new ObjectMapper();
+    private static final long LOCKED_RETRY_MS = 5_000;
+    private static final int WORKERS = Integer.getInteger("etoll.consumer.threads",
+            Runtime.getRuntime().availableProcessors());
 
     public static void main(String[] args) throws Exception {
 
         Properties props = KafkaConfig.getConsumerProps();
         KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
+        // startup metric (compare runs with/without -XX:SharedArchiveFile)
+        System.out.println("[Consumer] Kafka client ready, JVM uptime "
+                + ManagementFactory.getRuntimeMXBean().getUptime() + " ms");
 
-        consumer.subscribe(Collections.singletonList("dsr_topic"));
-        System.out.println("[Consumer] Started...");
+        KafkaConfig.ensureTopic();
+        consumer.subscribe(Collections.singletonList(KafkaConfig.TOPIC));
+        System.out.println("[Consumer] Started (node " + OutputFolderLease.NODE_ID + ")...");
+
+        // one task per partition per poll: partitions run in parallel (gated by
+        // AdmissionController's heap budget), records of a partition stay in order
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+
+        // partitions waiting for another node's lease -> when to resume them
+        Map<TopicPartition, Long> paused = new HashMap<>();
 
         while (true) {
-            for (ConsumerRecord<String, String> rec :
-                    consumer.poll(Duration.ofSeconds(1))) {
+            long now = System.currentTimeMillis();
+            List<TopicPartition> due = new ArrayList<>();
+            paused.entrySet().removeIf(e -> {
+                if (e.getValue() > now) return false;
+                if (consumer.assignment().contains(e.getKey())) due.add(e.getKey());
+                return true;
+            });
+            if (!due.isEmpty()) consumer.resume(due);
+
+            ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(1));
+
+            Map<TopicPartition, Future<Long>> tasks = new HashMap<>();
+            for (TopicPartition tp : records.partitions()) {
+                List<ConsumerRecord<String, String>> part = records.records(tp);
+                tasks.put(tp, workers.submit(() -> processPartition(tp, part)));
+            }
+
+            // KafkaConsumer is single-threaded: rewinds happen here, after the batch.
+            // Only the locked partition is paused; the others keep flowing.
+            for (Map.Entry<TopicPartition, Future<Long>> e : tasks.entrySet()) {
+                long rewindTo = e.getValue().get();
+                if (rewindTo >= 0) {
+                    consumer.seek(e.getKey(), rewindTo);
+                    consumer.pause(Collections.singletonList(e.getKey()));
+                    paused.put(e.getKey(), System.currentTimeMillis() + LOCKED_RETRY_MS);
+                }
+            }
+        }
+    }
 
-                String json = rec.value();
-                System.out.println("[Consumer] Received -> " + json);
+    /** Returns the offset to rewind to when an output folder is leased elsewhere, else -1. */
+    private static long processPartition(TopicPartition tp, List<ConsumerRecord<String, String>> part) {
+        for (ConsumerRecord<String, String> rec : part) {
 
-                try {
-                    // --------------------------------------------------
-                    // SAFE JSON PARSING
-                    // --------------------------------------------------
-                    JsonNode node = mapper.readTree(json);
-                    String folder = node.get("folder").asText();
-                    String file = node.get("file").asText();
+            String json = rec.value();
+            System.out.println("[Consumer] Received (key " + rec.key() + ", " + tp + ") -> " + json);
 
-                    Path dsrPath = Paths.get(folder, file)
-                            .toAbsolutePath()
-                            .normalize();
+            try {
+                // --------------------------------------------------
+                // SAFE JSON PARSING
+                // --------------------------------------------------
+                JsonNode node = mapper.readTree(json);
+                String folder = node.get("folder").asText();
+                String file = node.get("file").asText();
 
-                    System.out.println("[Consumer] Using file: " + dsrPath);
+                Path dsrPath = Paths.get(folder, file)
+                        .toAbsolutePath()
+                        .normalize();
 
-                    // --------------------------------------------------
-                    // CALL GENERATOR
-                    // --------------------------------------------------
-                    Map<String, Object> result =
-                            EtollVoucherGenerator.generateVoucher(dsrPath);
+                System.out.println("[Consumer] Using file: " + dsrPath);
 
-                    System.out.println("[Consumer] Generator result: " + result);
-                }
-                catch (Exception ex) {
-                    System.out.println("[Consumer] ERROR processing message: "
-                            + ex.getMessage());
-                    ex.printStackTrace();
+                // --------------------------------------------------
+                // CALL GENERATOR
+                // --------------------------------------------------
+                Map<String, Object> result =
+                        EtollVoucherGenerator.generateVoucher(dsrPath);
+
+                System.out.println("[Consumer] Generator result: " + result);
+
+                // another node still owns the output folder (e.g. mid-rebalance):
+                // rewind this partition and retry on a later poll
+                if ("locked".equals(result.get("status"))) {
+                    return rec.offset();
                 }
             }
+            catch (Exception ex) {
+                System.out.println("[Consumer] ERROR processing message: "
+                        + ex.getMessage());
+                ex.printStackTrace();
+            }
         }
+        return -1;
     }
 }
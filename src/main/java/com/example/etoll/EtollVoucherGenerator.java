@@ -1,7 +1,17 @@
 package com.example.etoll;
 
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
 
 
 // kafka working properly + guidelines added in the text file
@@ -14,6 +24,7 @@ import java.nio.file.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * EtollVoucherGenerator - final single-file generator.
@@ -21,6 +32,7 @@ import java.util.*;
  * - Use dsr_reports/<folder>/dsr_report.xlsx as input (processes all folders)
  * - Fixed RUN_NUMBER=1 and output root E-tollAcquiringSettlement/Processing
  * - Minimal logging to logs/etoll_log_<ts>.txt
+ * - Heap budget via AdmissionController (DOM reader, or SAX reader for oversize files)
  * - Public API: generateVoucher(Path dsrPath)
  */
 public class EtollVoucherGenerator {
@@ -142,27 +154,60 @@ public class EtollVoucherGenerator {
 
     /**
      * Public generator method used by consumers: accepts full path to dsr_report.xlsx.
-     * Returns map {status, path, debit, credit, message?}
+     * Returns map {status (ok/error/locked), path, debit, credit, message?}
      */
     public static Map<String,Object> generateVoucher(Path dsrPath) throws Exception {
-        Workbook wb;
-        try (InputStream is = Files.newInputStream(dsrPath, StandardOpenOption.READ)) {
-            wb = WorkbookFactory.create(is);
-        }
-
-        Sheet sheet = wb.getSheetAt(0);
-        List<Map<String,String>> rows = readSheetToMaps(sheet);
-
-        // forward-fill TC & TT only
-        forwardFill(rows, COL_TRANSACTION_CYCLE);
-        forwardFill(rows, COL_TRANSACTION_TYPE);
+        return generateVoucher(dsrPath, OUTPUT_ROOT);
+    }
 
-        // Settlement from Excel (Option B)
-        LocalDate settlement = findSettlementDate(rows);
-        if (settlement == null) settlement = LocalDate.now();
+    /**
+     * Same as generateVoucher(Path) but writes under the given output root
+     * (used by the warm-up run so it never touches the real Processing folder).
+     */
+    public static Map<String,Object> generateVoucher(Path dsrPath, Path outputRoot) throws Exception {
+        // waits for heap budget; oversize files are read with the SAX reader instead of the DOM
+        try (AdmissionController.Ticket ticket = AdmissionController.get().admit(dsrPath)) {
+            List<Map<String,String>> rows = ticket.streaming() ? readSheetStreaming(dsrPath) : readSheet(dsrPath);
+
+            // forward-fill TC & TT only
+            forwardFill(rows, COL_TRANSACTION_CYCLE);
+            forwardFill(rows, COL_TRANSACTION_TYPE);
+
+            // Settlement from Excel (Option B)
+            LocalDate settlement = findSettlementDate(rows);
+            if (settlement == null) settlement = LocalDate.now();
+
+            log("Settlement date inside Excel = " + settlement);
+
+            Path folder = outputRoot.resolve(String.valueOf(settlement.getYear()))
+                    .resolve(String.format("%02d", settlement.getMonthValue()))
+                    .resolve(String.format("%02d", settlement.getDayOfMonth()));
+            Files.createDirectories(folder);
+
+            // claim the settlement-date folder for the rest of the job (lease is renewed
+            // while held) so two nodes never build/write the same date at once
+            try (OutputFolderLease lease = OutputFolderLease.tryAcquire(folder)) {
+                if (lease == null) {
+                    log("Output folder " + folder + " is leased by another job, skipping");
+                    Map<String,Object> result = new HashMap<>();
+                    result.put("status", "locked");
+                    result.put("path", folder.toString());
+                    result.put("message", "Output folder leased by another job");
+                    return result;
+                }
+                return buildVoucher(rows, settlement, folder);
+            }
+        }
+    }
 
-        log("Settlement date inside Excel = " + settlement);
+    static List<Map<String,String>> readSheet(Path dsrPath) throws Exception {
+        try (InputStream is = Files.newInputStream(dsrPath, StandardOpenOption.READ);
+             Workbook wb = WorkbookFactory.create(is)) {
+            return readSheetToMaps(wb.getSheetAt(0));
+        }
+    }
 
+    private static Map<String,Object> buildVoucher(List<Map<String,String>> rows, LocalDate settlement, Path folder) throws Exception {
         String yyyymmdd = settlement.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
         String ddmmyy   = settlement.format(DateTimeFormatter.ofPattern("ddMMyy"));
         String dd_mm_yy = settlement.format(DateTimeFormatter.ofPattern("dd.MM.yy"));
@@ -301,12 +346,7 @@ public class EtollVoucherGenerator {
         cTotal = round2(cTotal);
         log("Voucher totals -> Debit: " + dTotal + " Credit: " + cTotal);
 
-        // create output folder and write
-        Path folder = OUTPUT_ROOT.resolve(String.valueOf(settlement.getYear()))
-                .resolve(String.format("%02d", settlement.getMonthValue()))
-                .resolve(String.format("%02d", settlement.getDayOfMonth()));
-        Files.createDirectories(folder);
-
+        // write into the (already leased) settlement-date folder
         Path okFile = folder.resolve("ETOLL_ACQUIRING_VOUCHER_" + ddmmyy + "_N" + RUN_NUMBER + ".xlsx");
         Path errFile = folder.resolve("ERROR_ETOLL_ACQUIRING_VOUCHER_" + ddmmyy + "_N" + RUN_NUMBER + ".xlsx");
 
@@ -318,7 +358,8 @@ public class EtollVoucherGenerator {
 
             Path writeTo = ok ? okFile : errFile;
 
-            // write workbook to disk (create/overwrite)
+            // write workbook to disk (create/overwrite): re-running a DSR (redelivery,
+            // retry after "locked", manual rerun) deliberately replaces the earlier voucher
             try (OutputStream os = Files.newOutputStream(writeTo, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
                 out.write(os);
             }
@@ -335,6 +376,16 @@ public class EtollVoucherGenerator {
         return result;
     }
 
+    /**
+     * Reads only the settlement date of a DSR file (null when absent).
+     * Used by the producer as the record key so one date maps to one partition.
+     * SAX parsing stops at the first row whose date parses, so this stays far below
+     * the admission budget even for large files.
+     */
+    public static LocalDate readSettlementDate(Path dsrPath) throws Exception {
+        return findSettlementDate(readSheetStreaming(dsrPath, r -> findSettlementDate(List.of(r)) != null));
+    }
+
     // ---------------- logging ----------------
     private static synchronized void setupLogging() throws IOException {
         Files.createDirectories(LOG_FOLDER);
@@ -376,36 +427,113 @@ public class EtollVoucherGenerator {
         Iterator<Row> it = sheet.iterator();
         if (!it.hasNext()) return rows;
         Row header = it.next();
-        List<String> headers = new ArrayList<>();
-        for (Cell c : header) headers.add(c.getStringCellValue().trim());
+        // keyed by column index so a gap in the header row does not shift later columns
+        Map<Integer,String> headers = new LinkedHashMap<>();
+        for (Cell c : header) headers.put(c.getColumnIndex(), cellToString(c).trim());
         while (it.hasNext()) {
             Row r = it.next();
             Map<String,String> map = new HashMap<>();
-            for (int i=0;i<headers.size();i++) {
-                Cell cell = r.getCell(i, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-                map.put(headers.get(i), cellToString(cell));
+            for (Map.Entry<Integer,String> h : headers.entrySet()) {
+                Cell cell = r.getCell(h.getKey(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
+                map.put(h.getValue(), cellToString(cell));
             }
             rows.add(map);
         }
         return rows;
     }
 
+    /**
+     * Low-memory reader: SAX over the first sheet, no DOM, and only the columns
+     * the voucher rules use are kept per row. Values match cellToString()
+     * (EtollVoucherGeneratorTest checks both readers on the same fixture).
+     */
+    static List<Map<String,String>> readSheetStreaming(Path dsrPath) throws Exception {
+        return readSheetStreaming(dsrPath, r -> false);
+    }
+
+    // same, but stops parsing once stopAfter accepts a data row (that row is included)
+    private static List<Map<String,String>> readSheetStreaming(Path dsrPath, Predicate<Map<String,String>> stopAfter) throws Exception {
+        Set<String> used = Set.of(COL_SETTLEMENT_DATE, COL_TRANSACTION_CYCLE, COL_TRANSACTION_TYPE, COL_CHANNEL,
+                COL_SETAMTDR, COL_SETAMTCR, COL_SERVICE_FEE_DR, COL_SERVICE_FEE_CR, COL_FINAL_NET_AMT, COL_INWARD_OUTWARD);
+        List<Map<String,String>> rows = new ArrayList<>();
+
+        try (OPCPackage pkg = OPCPackage.open(dsrPath.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) return rows;
+
+            XSSFSheetXMLHandler.SheetContentsHandler handler = new XSSFSheetXMLHandler.SheetContentsHandler() {
+                final Map<Integer,String> headers = new HashMap<>();
+                boolean headerDone = false;
+                Map<String,String> current;
+
+                @Override public void startRow(int rowNum) {
+                    if (!headerDone) return;
+                    current = new HashMap<>();
+                    for (String h : headers.values()) current.put(h, "");
+                }
+
+                @Override public void endRow(int rowNum) {
+                    if (!headerDone) headerDone = true;
+                    else {
+                        rows.add(current);
+                        if (stopAfter.test(current)) throw new StopParsing();
+                    }
+                }
+
+                @Override public void cell(String ref, String value, XSSFComment comment) {
+                    int col = new CellReference(ref).getCol();
+                    if (!headerDone) {
+                        String h = value == null ? "" : value.trim();
+                        if (used.contains(h)) headers.put(col, h);
+                    } else if (headers.containsKey(col)) {
+                        current.put(headers.get(col), value == null ? "" : value);
+                    }
+                }
+            };
+
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), strings, handler, new RawCellFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            } catch (StopParsing stop) {
+                // enough rows read
+            }
+        }
+        return rows;
+    }
+
+    private static class StopParsing extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        StopParsing() { super(null, null, false, false); }
+    }
+
+    // formats numeric cells the way cellToString() does (ISO dates, plain decimals)
+    private static class RawCellFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getLocalDateTime(value).toLocalDate().toString();
+            }
+            return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    // values as the SAX reader reports them: formulas give their cached result,
+    // booleans TRUE/FALSE, errors ERROR:<code>
     private static String cellToString(Cell cell) {
         if (cell == null) return "";
-        switch (cell.getCellType()) {
+        CellType type = cell.getCellType();
+        if (type == CellType.FORMULA) type = cell.getCachedFormulaResultType();
+        switch (type) {
             case STRING: return cell.getStringCellValue();
             case NUMERIC:
                 if (DateUtil.isCellDateFormatted(cell)) return cell.getLocalDateTimeCellValue().toLocalDate().toString();
                 else return BigDecimal.valueOf(cell.getNumericCellValue()).stripTrailingZeros().toPlainString();
-            case BOOLEAN: return Boolean.toString(cell.getBooleanCellValue());
+            case BOOLEAN: return cell.getBooleanCellValue() ? "TRUE" : "FALSE";
+            case ERROR: return "ERROR:" + FormulaError.forInt(cell.getErrorCellValue()).getString();
             case BLANK: return "";
-            case FORMULA:
-                try {
-                    if (DateUtil.isCellDateFormatted(cell)) return cell.getLocalDateTimeCellValue().toLocalDate().toString();
-                    return cell.getStringCellValue();
-                } catch (Exception e) {
-                    return cell.getCellFormula();
-                }
             default: return cell.toString();
         }
     }
@@ -5,6 +5,7 @@ import org.apache.kafka.clients.producer.ProducerRecord;
 
 import java.io.IOException;
 import java.nio.file.*;
+import java.time.LocalDate;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
 
@@ -12,9 +13,11 @@ public class FileWatcherProducer implements Runnable {
 
     private final Path root = Paths.get("dsr_reports");
     private final KafkaProducer<String,String> producer;
-    private final String topic = "dsr_topic";
+    private final String topic = KafkaConfig.TOPIC;
+    private static final String UNREADABLE_KEY = "unreadable";
 
-    public FileWatcherProducer() throws IOException {
+    public FileWatcherProducer() throws Exception {
+        KafkaConfig.ensureTopic();
         Properties props = KafkaConfig.getProducerProps();
         this.producer = new KafkaProducer<>(props);
     }
@@ -76,8 +79,24 @@ public class FileWatcherProducer implements Runnable {
         String f = folder.toString().replace("\\", "/");   // IMPORTANT FIX
         String json = "{ \"folder\": \"" + f + "\", \"file\": \"" + fileName + "\" }";
 
-        System.out.println("[Producer] Sending -> " + json);
-        producer.send(new ProducerRecord<>(topic, json));
+        String key = routingKey(folder, fileName);
+
+        System.out.println("[Producer] Sending (key " + key + ") -> " + json);
+        producer.send(new ProducerRecord<>(topic, key, json));
+    }
+
+    // settlement date as key -> same date always lands on the same partition/consumer.
+    // Keys are always LocalDate.toString(); a file without a date gets today's, the
+    // same fallback generateVoucher uses for its output folder.
+    private String routingKey(Path folder, String fileName) {
+        try {
+            LocalDate d = EtollVoucherGenerator.readSettlementDate(folder.resolve(fileName));
+            return (d != null ? d : LocalDate.now()).toString();
+        } catch (Exception e) {
+            // the generator cannot read it either: one fixed key instead of a guessed date
+            System.out.println("[Producer] Could not read settlement date of " + folder + ": " + e.getMessage());
+            return UNREADABLE_KEY;
+        }
     }
 
     public static void main(String[] args) throws Exception {
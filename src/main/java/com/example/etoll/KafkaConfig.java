@@ -1,17 +1,33 @@
 package com.example.etoll;
 
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewPartitions;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.errors.InvalidPartitionsException;
+import org.apache.kafka.common.errors.TopicExistsException;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
+import java.util.Collections;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
 
 public class KafkaConfig {
 
+    // override with -Detoll.kafka.bootstrap / -Detoll.topic / -Detoll.topic.partitions
+    public static final String BOOTSTRAP = System.getProperty("etoll.kafka.bootstrap", "localhost:9092");
+    public static final String TOPIC = System.getProperty("etoll.topic", "dsr_topic");
+    public static final int TOPIC_PARTITIONS = Integer.getInteger("etoll.topic.partitions", 6);
+    public static final short TOPIC_REPLICATION = Short.parseShort(System.getProperty("etoll.topic.replication", "1"));
+
     public static Properties getProducerProps() {
         Properties p = new Properties();
-        p.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        p.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, BOOTSTRAP);
         p.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
         p.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
         return p;
@@ -19,11 +35,52 @@ public class KafkaConfig {
 
     public static Properties getConsumerProps() {
         Properties p = new Properties();
-        p.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        p.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, BOOTSTRAP);
         p.put(ConsumerConfig.GROUP_ID_CONFIG, "etoll-consumer-group");
         p.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         p.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         p.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        // nodes joining/leaving only move the partitions that change owner
+        p.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, CooperativeStickyAssignor.class.getName());
         return p;
     }
+
+    /**
+     * Creates TOPIC with TOPIC_PARTITIONS partitions, or grows an existing
+     * topic (e.g. one auto-created with a single partition) up to that count.
+     */
+    public static void ensureTopic() throws Exception {
+        Properties p = new Properties();
+        p.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, BOOTSTRAP);
+
+        try (AdminClient admin = AdminClient.create(p)) {
+            try {
+                admin.createTopics(Collections.singletonList(
+                        new NewTopic(TOPIC, TOPIC_PARTITIONS, TOPIC_REPLICATION))).all().get();
+                System.out.println("[Kafka] Created topic " + TOPIC + " with " + TOPIC_PARTITIONS + " partitions");
+                return;
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof TopicExistsException)) throw e;
+            }
+
+            int current = partitionCount(admin);
+            if (current < TOPIC_PARTITIONS) {
+                try {
+                    admin.createPartitions(Collections.singletonMap(TOPIC,
+                            NewPartitions.increaseTo(TOPIC_PARTITIONS))).all().get();
+                    System.out.println("[Kafka] Topic " + TOPIC + " grown " + current + " -> " + TOPIC_PARTITIONS + " partitions");
+                } catch (ExecutionException e) {
+                    // another node starting at the same time grew it first
+                    if (!(e.getCause() instanceof InvalidPartitionsException)
+                            || partitionCount(admin) < TOPIC_PARTITIONS) throw e;
+                }
+            }
+        }
+    }
+
+    private static int partitionCount(AdminClient admin) throws Exception {
+        TopicDescription desc = admin.describeTopics(Collections.singletonList(TOPIC))
+                .allTopicNames().get().get(TOPIC);
+        return desc.partitions().size();
+    }
 }
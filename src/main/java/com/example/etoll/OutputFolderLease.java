@@ -0,0 +1,138 @@
+package com.example.etoll;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OutputFolderLease - claim on one settlement-date output folder.
+ *
+ * - Lease file .etoll_lease holds "owner\nexpiryMillis", created with CREATE_NEW
+ * - Owner is unique per acquisition (NODE_ID/uuid), so parallel workers of one
+ *   JVM exclude each other too; expired leases are taken over via atomic rename
+ * - Held for the whole job and renewed every TTL/3, so a short TTL only matters
+ *   when the holder dies (its date is free again after at most one TTL)
+ * - Output root must be a shared volume when several nodes run the consumer
+ */
+public class OutputFolderLease implements AutoCloseable {
+
+    public static final String NODE_ID = System.getProperty("etoll.node.id",
+            ManagementFactory.getRuntimeMXBean().getName());
+    public static final Duration TTL = Duration.ofSeconds(Long.getLong("etoll.lease.ttl.seconds", 30));
+
+    private static final String LEASE_FILE = ".etoll_lease";
+
+    private static final ScheduledExecutorService RENEWER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "etoll-lease-renewer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Path file;
+    private final String owner;
+    private final Duration ttl;
+    private ScheduledFuture<?> renewal;
+
+    private OutputFolderLease(Path file, String owner, Duration ttl) {
+        this.file = file;
+        this.owner = owner;
+        this.ttl = ttl;
+    }
+
+    private static OutputFolderLease held(Path file, String owner, Duration ttl) {
+        OutputFolderLease lease = new OutputFolderLease(file, owner, ttl);
+        long every = Math.max(1, ttl.toMillis() / 3);
+        lease.renewal = RENEWER.scheduleAtFixedRate(lease::renew, every, every, TimeUnit.MILLISECONDS);
+        return lease;
+    }
+
+    /** Returns the lease, or null when another live job (any node or thread) holds the folder. */
+    public static OutputFolderLease tryAcquire(Path folder) throws IOException {
+        return tryAcquire(folder, NODE_ID + "/" + UUID.randomUUID(), TTL);
+    }
+
+    public static OutputFolderLease tryAcquire(Path folder, String owner, Duration ttl) throws IOException {
+        Path file = folder.resolve(LEASE_FILE);
+        String content = owner + "\n" + (System.currentTimeMillis() + ttl.toMillis());
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                Files.writeString(file, content, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                return held(file, owner, ttl);
+            } catch (FileAlreadyExistsException e) {
+                String existing = read(file);
+                if (existing == null) continue;   // released meanwhile
+
+                String[] parts = existing.split("\n");
+                if (!isExpired(parts, file, ttl)) return null;
+
+                // stale lease: only one node wins the rename, and it must still be the stale one
+                Path stale = folder.resolve(LEASE_FILE + ".stale." + Math.abs(owner.hashCode()));
+                try {
+                    Files.move(file, stale, StandardCopyOption.ATOMIC_MOVE);
+                } catch (NoSuchFileException lost) {
+                    continue;
+                }
+                if (!existing.equals(read(stale))) {
+                    try { Files.move(stale, file, StandardCopyOption.ATOMIC_MOVE); }
+                    catch (IOException ignored) {}
+                    return null;
+                }
+                Files.deleteIfExists(stale);
+                System.out.println("[Lease] Took over expired lease of " + parts[0] + " on " + folder);
+            }
+        }
+        return null;
+    }
+
+    private synchronized void renew() {
+        try {
+            String existing = read(file);
+            if (existing == null || !existing.split("\n")[0].equals(owner)) {
+                System.out.println("[Lease] Lost lease on " + file.getParent());
+                renewal.cancel(false);
+                return;
+            }
+            replace(file, owner + "\n" + (System.currentTimeMillis() + ttl.toMillis()));
+        } catch (IOException e) {
+            System.out.println("[Lease] Could not renew lease on " + file.getParent() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        renewal.cancel(false);
+        String existing = read(file);
+        if (existing != null && existing.split("\n")[0].equals(owner)) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // a lease without an expiry is still being created (CREATE_NEW then write): age it by mtime
+    private static boolean isExpired(String[] parts, Path file, Duration ttl) throws IOException {
+        try { return Long.parseLong(parts[1].trim()) < System.currentTimeMillis(); }
+        catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            try { return Files.getLastModifiedTime(file).toMillis() + ttl.toMillis() < System.currentTimeMillis(); }
+            catch (NoSuchFileException gone) { return true; }
+        }
+    }
+
+    // renewals swap the whole file in, so readers never see a truncated lease
+    private static void replace(Path file, String content) throws IOException {
+        Path tmp = file.resolveSibling(LEASE_FILE + ".tmp." + UUID.randomUUID());
+        Files.writeString(tmp, content, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String read(Path file) throws IOException {
+        try { return Files.readString(file, StandardCharsets.UTF_8); }
+        catch (NoSuchFileException e) { return null; }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.etoll;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * VoucherWarmUp - runs the parse/aggregate/write path on a synthetic DSR file.
+ *
+ * - Synthetic dsr_report.xlsx is built into a temp folder (never dsr_reports/)
+ * - Output goes to the same temp folder, deleted afterwards
+ * - Used by "AppMain warmup" (AppCDS training run) and "--warmup" before consuming
+ * - Also walks the consumer/producer startup path without a broker (Kafka clients,
+ *   Jackson, SAX settlement-date lookup) so those classes land in the archive too
+ */
+public class VoucherWarmUp {
+
+    private static final String[] HEADERS = {
+            "Settlement Date", "Inward/Outward", "Transaction Cycle", "Transaction Type", "Channel",
+            "SETAMTDR", "SETAMTCR", "Service Fee Amt Dr", "Service Fee Amt Cr", "Final Net Amt"
+    };
+
+    // {Inward/Outward, Transaction Cycle, Transaction Type, Channel, SETAMTDR, SETAMTCR, Fee Dr, Fee Cr, Final Net}
+    // figures tally (debit = credit = 15737.75) so warm-up takes the same "ok" path as production
+    private static final List<Object[]> ROWS = List.of(
+            new Object[]{"OUTWARD", "NETC Settled Transaction", "DEBIT", "TOLL", 0, 15230.5, 0, 0, null},
+            new Object[]{"OUTWARD", "", "DEBIT", "PARKING", 0, 420.0, 0, 0, null},
+            new Object[]{"OUTWARD", "DebitAdjustment", "DEBIT", "TOLL", 0, 75.25, 0, 0, null},
+            new Object[]{"OUTWARD", "Good Faith Acceptance", "CREDIT", "TOLL", 0, 12.0, 0, 0, null},
+            new Object[]{"OUTWARD", "Credit Adjustment", "CREDIT", "TOLL", 33.5, 0, 0, 0, null},
+            new Object[]{"OUTWARD", "Chargeback Acceptance", "CREDIT", "TOLL", 18.0, 0, 0, 0, null},
+            new Object[]{"OUTWARD", "Pre-Arbitration Acceptance", "CREDIT", "TOLL", 9.75, 0, 0, 0, null},
+            new Object[]{"OUTWARD", "Arbitration Vedict", "NON_FIN", "TOLL", 4.5, 0, 0, 0, null},
+            new Object[]{"INWARD", "NA", "NA", "", 0, 0, 120.0, 0, null},
+            new Object[]{"INWARD GST", "NA", "NA", "", 0, 0, 21.6, 0, 15530.40}
+    );
+
+    /**
+     * Runs the generator `iterations` times on a synthetic file.
+     * Returns elapsed millis of the first call (the cold, interpreted one).
+     */
+    public static long run(int iterations) throws Exception {
+        Path tmp = Files.createTempDirectory("etoll-warmup");
+        try {
+            Path dsr = tmp.resolve("dsr_report.xlsx");
+            writeSyntheticDsr(dsr);
+            warmStartupPath(tmp, dsr);
+
+            long first = -1;
+            for (int i = 0; i < Math.max(1, iterations); i++) {
+                long t0 = System.nanoTime();
+                Map<String, Object> result = EtollVoucherGenerator.generateVoucher(dsr, tmp.resolve("out"));
+                long ms = (System.nanoTime() - t0) / 1_000_000;
+                if (first < 0) first = ms;
+                System.out.println("[WarmUp] Iteration " + (i + 1) + " -> " + ms + " ms (" + result.get("status") + ")");
+            }
+
+            System.out.println("[WarmUp] JVM uptime " + ManagementFactory.getRuntimeMXBean().getUptime()
+                    + " ms, first voucher " + first + " ms");
+            return first;
+        } finally {
+            deleteRecursively(tmp);
+        }
+    }
+
+    // what DsrConsumer / FileWatcherProducer touch before the first record; no broker needed:
+    // clients only connect on first poll/send/request, and are closed right away
+    private static void warmStartupPath(Path folder, Path dsr) throws Exception {
+        long t0 = System.nanoTime();
+
+        String json = "{ \"folder\": \"" + folder.toString().replace("\\", "/") + "\", \"file\": \"dsr_report.xlsx\" }";
+        JsonNode node = new ObjectMapper().readTree(json);
+        node.get("folder").asText();
+        node.get("file").asText();
+
+        LocalDate settlement = EtollVoucherGenerator.readSettlementDate(dsr);
+
+        Properties adminProps = new Properties();
+        adminProps.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, KafkaConfig.BOOTSTRAP);
+        AdminClient admin = AdminClient.create(adminProps);   // KafkaConfig.ensureTopic()
+        admin.close(Duration.ZERO);
+
+        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(KafkaConfig.getConsumerProps());
+        consumer.subscribe(Collections.singletonList(KafkaConfig.TOPIC));
+        consumer.close(Duration.ZERO);
+
+        KafkaProducer<String, String> producer = new KafkaProducer<>(KafkaConfig.getProducerProps());
+        producer.close(Duration.ZERO);
+
+        System.out.println("[WarmUp] Startup path (Kafka clients, Jackson, settlement date " + settlement + ") -> "
+                + (System.nanoTime() - t0) / 1_000_000 + " ms");
+    }
+
+    private static void writeSyntheticDsr(Path file) throws IOException {
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet sh = wb.createSheet("DSR");
+            CellStyle dateStyle = wb.createCellStyle();
+            dateStyle.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("dd-mm-yyyy"));
+
+            Row header = sh.createRow(0);
+            for (int c = 0; c < HEADERS.length; c++) header.createCell(c).setCellValue(HEADERS[c]);
+
+            int r = 1;
+            for (Object[] data : ROWS) {
+                Row row = sh.createRow(r++);
+                Cell date = row.createCell(0);
+                date.setCellValue(LocalDate.of(2000, 1, 1));
+                date.setCellStyle(dateStyle);
+                for (int c = 0; c < data.length; c++) {
+                    Object o = data[c];
+                    Cell cell = row.createCell(c + 1);
+                    if (o == null) cell.setBlank();
+                    else if (o instanceof Number) cell.setCellValue(((Number) o).doubleValue());
+                    else cell.setCellValue(o.toString());
+                }
+            }
+
+            try (OutputStream os = Files.newOutputStream(file)) {
+                wb.write(os);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path root) {
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try { Files.deleteIfExists(p); }
+                catch (IOException e) { throw new UncheckedIOException(e); }
+            });
+        } catch (Exception e) {
+            System.out.println("[WarmUp] Could not clean " + root + ": " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        run(args.length > 0 ? Integer.parseInt(args[0]) : 3);
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.etoll;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+
+    @TempDir
+    Path dir;
+
+    private Path smallDsr() throws Exception {
+        Path file = dir.resolve("dsr_report.xlsx");
+        try (Workbook wb = new XSSFWorkbook(); OutputStream os = Files.newOutputStream(file)) {
+            wb.createSheet("DSR").createRow(0).createCell(0).setCellValue("Settlement Date");
+            wb.write(os);
+        }
+        return file;
+    }
+
+    /** Workbook whose first sheet spans A1 to the given last cell, e.g. (35, 27) -> A1:AB36. */
+    private Path sheetUpTo(String name, int lastRow, int lastCol) throws Exception {
+        Path file = dir.resolve(name);
+        try (Workbook wb = new XSSFWorkbook(); OutputStream os = Files.newOutputStream(file)) {
+            Sheet sh = wb.createSheet("DSR");
+            sh.createRow(0).createCell(0).setCellValue("Settlement Date");
+            sh.createRow(lastRow).createCell(lastCol).setCellValue(1);
+            wb.write(os);
+        }
+        return file;
+    }
+
+    // admit on another thread; returns once it is queued behind the current holder
+    private Future<AdmissionController.Ticket> admitLater(ExecutorService ex, AdmissionController ac, Path file)
+            throws Exception {
+        long queued = ac.getQueuedJobs();
+        Future<AdmissionController.Ticket> f = ex.submit(() -> ac.admit(file));
+        while (ac.getQueuedJobs() <= queued && !f.isDone()) Thread.sleep(5);
+        return f;
+    }
+
+    @Test
+    void estimateReadsDimensionOfFirstSheet() throws Exception {
+        AdmissionController.Estimate e = AdmissionController.estimate(sheetUpTo("a.xlsx", 35, 27));
+        assertEquals(36, e.rows);
+        assertEquals(28, e.cols);
+        assertTrue(e.domBytes > 36 * 28 * 1_000L);
+        assertTrue(e.streamBytes < e.domBytes);
+    }
+
+    @Test
+    void estimateFollowsWorkbookOrderNotPartName() throws Exception {
+        Path file = dir.resolve("reordered.xlsx");
+        try (Workbook wb = new XSSFWorkbook(); OutputStream os = Files.newOutputStream(file)) {
+            wb.createSheet("notes").createRow(0).createCell(0).setCellValue("x");          // part sheet1.xml
+            Sheet dsr = wb.createSheet("DSR");                                              // part sheet2.xml
+            dsr.createRow(0).createCell(0).setCellValue("Settlement Date");
+            dsr.createRow(99).createCell(9).setCellValue(1);
+            wb.setSheetOrder("DSR", 0);
+            wb.write(os);
+        }
+
+        AdmissionController.Estimate e = AdmissionController.estimate(file);
+        assertEquals(100, e.rows);
+        assertEquals(10, e.cols);
+    }
+
+    @Test
+    void missingDimensionFallsBackToSheetXmlSize() throws Exception {
+        Path src = sheetUpTo("src.xlsx", 499, 9);
+        Path file = dir.resolve("nodim.xlsx");
+        long sheetXml = 0;
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(src));
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+            for (ZipEntry z; (z = in.getNextEntry()) != null; ) {
+                byte[] data = in.readAllBytes();
+                if (z.getName().equals("xl/worksheets/sheet1.xml")) {
+                    data = new String(data, StandardCharsets.UTF_8)
+                            .replaceAll("<dimension [^>]*/>", "").getBytes(StandardCharsets.UTF_8);
+                    sheetXml = data.length;
+                }
+                out.putNextEntry(new ZipEntry(z.getName()));
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+
+        AdmissionController.Estimate e = AdmissionController.estimate(file);
+        assertEquals(30, e.cols);
+        assertEquals(Math.max(1, sheetXml / 40 / 30), e.rows);
+    }
+
+    @Test
+    void jobWaitsWhileBudgetIsFullAndRunsOnceTicketCloses() throws Exception {
+        Path dsr = smallDsr();
+        long cost = AdmissionController.estimate(dsr).domBytes;
+        AdmissionController ac = new AdmissionController(cost * 3 / 2);
+
+        ExecutorService ex = Executors.newSingleThreadExecutor();
+        try {
+            AdmissionController.Ticket first = ac.admit(dsr);
+            assertEquals(cost, ac.getInFlightBytes());
+
+            Future<AdmissionController.Ticket> second = admitLater(ex, ac, dsr);
+            Thread.sleep(100);
+            assertFalse(second.isDone(), "in-flight + cost exceeds the budget");
+            assertEquals(1, ac.getQueuedJobs());
+
+            first.close();
+            AdmissionController.Ticket t = second.get(5, TimeUnit.SECONDS);
+            assertFalse(t.streaming());
+            assertEquals(cost, ac.getInFlightBytes());
+            t.close();
+            assertEquals(0, ac.getInFlightBytes());
+        } finally {
+            ex.shutdownNow();
+        }
+    }
+
+    @Test
+    void oversizeFileIsStreamedUnderStreamPolicy() throws Exception {
+        Path big = sheetUpTo("big.xlsx", 4_999, 49);
+        AdmissionController ac = new AdmissionController(AdmissionController.estimate(big).domBytes / 2, true);
+
+        try (AdmissionController.Ticket t = ac.admit(big)) {
+            assertTrue(t.streaming());
+            assertEquals(1, ac.getStreamedJobs());
+            assertEquals(AdmissionController.estimate(big).streamBytes, ac.getInFlightBytes());
+        }
+    }
+
+    @Test
+    void oversizeFileRunsAloneUnderQueuePolicy() throws Exception {
+        Path small = smallDsr();
+        Path big = sheetUpTo("big.xlsx", 4_999, 49);
+        long budget = AdmissionController.estimate(small).domBytes * 4;
+        AdmissionController ac = new AdmissionController(budget, false);
+
+        ExecutorService ex = Executors.newFixedThreadPool(2);
+        try {
+            AdmissionController.Ticket smallJob = ac.admit(small);
+
+            // big waits for the small job, then runs on the DOM path with nothing beside it
+            Future<AdmissionController.Ticket> bigJob = admitLater(ex, ac, big);
+            Thread.sleep(100);
+            assertFalse(bigJob.isDone());
+            smallJob.close();
+            AdmissionController.Ticket bigTicket = bigJob.get(5, TimeUnit.SECONDS);
+            assertFalse(bigTicket.streaming());
+            assertEquals(1, ac.getRunningJobs());
+
+            Future<AdmissionController.Ticket> next = admitLater(ex, ac, small);
+            Thread.sleep(100);
+            assertFalse(next.isDone(), "nothing runs beside an oversize job");
+            bigTicket.close();
+            next.get(5, TimeUnit.SECONDS).close();
+            assertEquals(0, ac.getStreamedJobs());
+        } finally {
+            ex.shutdownNow();
+        }
+    }
+
+    @Test
+    void interruptedWaiterDoesNotBlockLaterJobs() throws Exception {
+        Path dsr = smallDsr();
+        // 1-byte budget: every job runs alone
+        AdmissionController ac = new AdmissionController(1);
+        AdmissionController.Ticket holder = ac.admit(dsr);
+
+        AtomicReference<Throwable> waiterError = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try { ac.admit(dsr).close(); }
+            catch (Throwable t) { waiterError.set(t); }
+        });
+        waiter.start();
+        while (ac.getQueuedJobs() < 1) Thread.sleep(5);
+
+        ExecutorService later = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> third = later.submit(() -> { ac.admit(dsr).close(); return null; });
+            while (ac.getQueuedJobs() < 2) Thread.sleep(5);
+
+            waiter.interrupt();
+            waiter.join(5_000);
+            assertInstanceOf(InterruptedException.class, waiterError.get());
+
+            holder.close();
+            third.get(5, TimeUnit.SECONDS);
+        } finally {
+            later.shutdownNow();
+        }
+
+        assertEquals(0, ac.getQueuedJobs());
+        assertEquals(0, ac.getInFlightBytes());
+        assertEquals(2, ac.getAdmittedJobs());
+    }
+
+    @Test
+    void headOfQueueInterruptedHandsTurnToNext() throws Exception {
+        Path dsr = smallDsr();
+        AdmissionController ac = new AdmissionController(1);
+        AdmissionController.Ticket holder = ac.admit(dsr);
+
+        Thread head = new Thread(() -> {
+            try { ac.admit(dsr).close(); }
+            catch (Exception ignored) {}
+        });
+        head.start();
+        while (ac.getQueuedJobs() < 1) Thread.sleep(5);
+        head.interrupt();
+        head.join(5_000);
+
+        holder.close();
+        ExecutorService later = Executors.newSingleThreadExecutor();
+        try {
+            later.submit(() -> { ac.admit(dsr).close(); return null; }).get(5, TimeUnit.SECONDS);
+        } finally {
+            later.shutdownNow();
+        }
+        assertEquals(0, ac.getQueuedJobs());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.etoll;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EtollVoucherGeneratorTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Header with a gap (column B empty), then rows with a date cell, a styled
+     * blank, strings, numbers and numeric/string/date/error formulas.
+     */
+    private Path fixture() throws Exception {
+        Path file = dir.resolve("dsr_report.xlsx");
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet sh = wb.createSheet("DSR");
+            CellStyle dateStyle = wb.createCellStyle();
+            dateStyle.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("dd-mm-yyyy"));
+            CellStyle amountStyle = wb.createCellStyle();
+            amountStyle.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("#,##0.00"));
+
+            Row h = sh.createRow(0);
+            h.createCell(0).setCellValue("Settlement Date");
+            // column B: no header cell at all
+            h.createCell(2).setCellValue("Transaction Cycle");
+            h.createCell(3).setCellValue("SETAMTDR");
+            h.createCell(4).setCellValue("Final Net Amt");
+            h.createCell(5).setCellValue("Channel");
+
+            Row r1 = sh.createRow(1);
+            Cell d = r1.createCell(0);
+            d.setCellValue(LocalDate.of(2025, 9, 4));
+            d.setCellStyle(dateStyle);
+            r1.createCell(1).setCellValue("ignored");
+            r1.createCell(2).setCellValue("NETC Settled Transaction");
+            Cell amt = r1.createCell(3);
+            amt.setCellValue(10);
+            amt.setCellStyle(amountStyle);
+            Cell net = r1.createCell(4);
+            net.setCellFormula("D2*2");
+            net.setCellStyle(amountStyle);
+            r1.createCell(5).setCellFormula("\"TO\"&\"LL\"");
+
+            Row r2 = sh.createRow(2);
+            Cell dateFormula = r2.createCell(0);
+            dateFormula.setCellFormula("A2+1");
+            dateFormula.setCellStyle(dateStyle);
+            r2.createCell(2).setCellStyle(amountStyle);   // styled blank
+            r2.createCell(3).setCellValue(1234.5);
+            r2.createCell(4).setCellFormula("1/0");
+            // column F missing entirely (sparse row)
+
+            wb.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            try (OutputStream os = Files.newOutputStream(file)) {
+                wb.write(os);
+            }
+        }
+        return file;
+    }
+
+    @Test
+    void domAndStreamingReadersAgree() throws Exception {
+        Path file = fixture();
+        List<Map<String,String>> dom = EtollVoucherGenerator.readSheet(file);
+        List<Map<String,String>> sax = EtollVoucherGenerator.readSheetStreaming(file);
+
+        assertEquals(2, dom.size());
+        assertEquals(dom.size(), sax.size());
+        for (int i = 0; i < dom.size(); i++) {
+            for (Map.Entry<String,String> e : sax.get(i).entrySet()) {
+                assertEquals(dom.get(i).get(e.getKey()), e.getValue(), "row " + i + " column " + e.getKey());
+            }
+        }
+
+        Map<String,String> r1 = sax.get(0);
+        assertEquals("2025-09-04", r1.get("Settlement Date"));
+        assertEquals("NETC Settled Transaction", r1.get("Transaction Cycle"));
+        assertEquals("10", r1.get("SETAMTDR"));
+        assertEquals("20", r1.get("Final Net Amt"));
+        assertEquals("TOLL", r1.get("Channel"));
+
+        Map<String,String> r2 = sax.get(1);
+        assertEquals("2025-09-05", r2.get("Settlement Date"));
+        assertEquals("", r2.get("Transaction Cycle"));
+        assertEquals("1234.5", r2.get("SETAMTDR"));
+        assertEquals("ERROR:#DIV/0!", r2.get("Final Net Amt"));
+        assertEquals("", r2.get("Channel"));
+    }
+
+    @Test
+    void settlementDateStopsAtFirstParsableRow() throws Exception {
+        assertEquals(LocalDate.of(2025, 9, 4), EtollVoucherGenerator.readSettlementDate(fixture()));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.etoll;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputFolderLeaseTest {
+
+    private static final Duration TTL = Duration.ofSeconds(60);
+
+    @TempDir
+    Path folder;
+
+    private Path leaseFile() {
+        return folder.resolve(".etoll_lease");
+    }
+
+    @Test
+    void acquireCreatesLeaseFileAndCloseRemovesIt() throws Exception {
+        try (OutputFolderLease lease = OutputFolderLease.tryAcquire(folder, "A", TTL)) {
+            assertNotNull(lease);
+            assertTrue(Files.readString(leaseFile()).startsWith("A\n"));
+        }
+        assertFalse(Files.exists(leaseFile()));
+    }
+
+    @Test
+    void liveLeaseOfAnotherOwnerIsRefused() throws Exception {
+        try (OutputFolderLease a = OutputFolderLease.tryAcquire(folder, "A", TTL)) {
+            assertNotNull(a);
+            assertNull(OutputFolderLease.tryAcquire(folder, "B", TTL));
+        }
+        try (OutputFolderLease b = OutputFolderLease.tryAcquire(folder, "B", TTL)) {
+            assertNotNull(b);
+        }
+    }
+
+    @Test
+    void parallelJobsOfTheSameNodeExcludeEachOther() throws Exception {
+        try (OutputFolderLease first = OutputFolderLease.tryAcquire(folder)) {
+            assertNotNull(first);
+            assertNull(OutputFolderLease.tryAcquire(folder));
+        }
+        assertFalse(Files.exists(leaseFile()));
+    }
+
+    @Test
+    void heldLeaseIsRenewedPastItsTtl() throws Exception {
+        Duration shortTtl = Duration.ofMillis(300);
+        try (OutputFolderLease a = OutputFolderLease.tryAcquire(folder, "A", shortTtl)) {
+            assertNotNull(a);
+            Thread.sleep(shortTtl.toMillis() * 3);
+            assertNull(OutputFolderLease.tryAcquire(folder, "B", shortTtl));
+        }
+    }
+
+    @Test
+    void expiredLeaseOfCrashedOwnerIsTakenOver() throws Exception {
+        // what a node that died mid-job leaves behind: no renewer, expiry in the past
+        Files.writeString(leaseFile(), "dead\n" + (System.currentTimeMillis() - 1), StandardCharsets.UTF_8);
+
+        try (OutputFolderLease b = OutputFolderLease.tryAcquire(folder, "B", TTL)) {
+            assertNotNull(b);
+            assertTrue(Files.readString(leaseFile()).startsWith("B\n"));
+        }
+        try (var files = Files.list(folder)) {
+            assertEquals(0, files.count(), "no stale/tmp leftovers");
+        }
+    }
+
+    @Test
+    void closeDoesNotRemoveALeaseTakenOverByAnotherOwner() throws Exception {
+        OutputFolderLease a = OutputFolderLease.tryAcquire(folder, "A", TTL);
+        assertNotNull(a);
+        Files.writeString(leaseFile(), "B\n" + (System.currentTimeMillis() + TTL.toMillis()), StandardCharsets.UTF_8);
+
+        a.close();
+        assertTrue(Files.readString(leaseFile()).startsWith("B\n"));
+    }
+}